@@ -19,13 +19,18 @@ public class AuthService {
     public static final String DEFAULT_AUTH_ENDPOINT = "https://auth.appcircle.io";
 
     public static UserResponse getAcToken(String pat, String authEndpoint) throws IOException, URISyntaxException {
+        return getAcToken(pat, authEndpoint, null);
+    }
+
+    public static UserResponse getAcToken(String pat, String authEndpoint, HttpEventRecorder recorder)
+            throws IOException, URISyntaxException {
         String baseUrl = (authEndpoint == null || authEndpoint.trim().isEmpty())
                 ? DEFAULT_AUTH_ENDPOINT
                 : authEndpoint.trim().replaceAll("/+$", "");
         String endpointUrl = baseUrl + "/auth/v2/token";
         URI uri = new URI(endpointUrl);
 
-        HttpClient httpClient = HttpClients.createDefault();
+        HttpClient httpClient = recorder != null ? recorder.getClient() : HttpClients.createDefault();
         HttpPost httpPost = new HttpPost(uri);
 
         // Set headers
@@ -16,6 +16,7 @@ import hudson.util.Secret;
 import io.jenkins.plugins.appcircle.enterprise.app.store.Models.UserResponse;
 import java.io.IOException;
 import java.net.URISyntaxException;
+import java.util.function.BooleanSupplier;
 import jenkins.tasks.SimpleBuildStep;
 import org.jenkinsci.Symbol;
 import org.json.JSONException;
@@ -34,6 +35,9 @@ public class EnterpriseAppStoreBuilder extends Builder implements SimpleBuildSte
     private final String publishType;
     private String authEndpoint;
     private String apiEndpoint;
+    private boolean supersedeOlderBuilds;
+    private boolean useOutbox;
+    private boolean dumpHttpEvents;
 
     @DataBoundConstructor
     public EnterpriseAppStoreBuilder(
@@ -67,6 +71,33 @@ public class EnterpriseAppStoreBuilder extends Builder implements SimpleBuildSte
         this.apiEndpoint = apiEndpoint;
     }
 
+    public boolean isSupersedeOlderBuilds() {
+        return supersedeOlderBuilds;
+    }
+
+    @DataBoundSetter
+    public void setSupersedeOlderBuilds(boolean supersedeOlderBuilds) {
+        this.supersedeOlderBuilds = supersedeOlderBuilds;
+    }
+
+    public boolean isUseOutbox() {
+        return useOutbox;
+    }
+
+    @DataBoundSetter
+    public void setUseOutbox(boolean useOutbox) {
+        this.useOutbox = useOutbox;
+    }
+
+    public boolean isDumpHttpEvents() {
+        return dumpHttpEvents;
+    }
+
+    @DataBoundSetter
+    public void setDumpHttpEvents(boolean dumpHttpEvents) {
+        this.dumpHttpEvents = dumpHttpEvents;
+    }
+
     public String getAppPath() {
         return appPath;
     }
@@ -91,22 +122,70 @@ public class EnterpriseAppStoreBuilder extends Builder implements SimpleBuildSte
             @NonNull Launcher launcher,
             @NonNull TaskListener listener)
             throws InterruptedException, IOException {
+        HttpEventRecorder recorder = new HttpEventRecorder();
+        HttpEventsAction.track(run, recorder);
+        boolean failed = false;
+        boolean registered = false;
+        boolean published = false;
         try {
             if (!validateFileExtension(this.appPath)) {
                 throw new IOException("Invalid file extension: " + this.appPath
                         + ". For Android, use .apk or .aab. For iOS, use .ipa.");
             }
 
-            UserResponse response = AuthService.getAcToken(this.personalAPIToken.getPlainText(), this.authEndpoint);
+            if (this.useOutbox) {
+                OutboxEntry entry = PublishOutbox.get()
+                        .enqueue(
+                                run,
+                                workspace.child(this.appPath),
+                                this.summary,
+                                this.releaseNotes,
+                                this.publishType,
+                                this.personalAPIToken,
+                                this.authEndpoint,
+                                this.apiEndpoint,
+                                this.supersedeOlderBuilds,
+                                this.dumpHttpEvents);
+                listener.getLogger()
+                        .println(this.appPath + " queued in the Appcircle outbox (" + entry.getId()
+                                + "). The result will be attached to this build once it is delivered.");
+                return;
+            }
+
+            if (this.supersedeOlderBuilds) {
+                PublishSupersession.register(run);
+                registered = true;
+            }
+            if (isSuperseded(run, listener, "upload")) {
+                return;
+            }
+
+            UserResponse response =
+                    AuthService.getAcToken(this.personalAPIToken.getPlainText(), this.authEndpoint, recorder);
             listener.getLogger().println("Login is successful.");
-            UploadService uploadService = new UploadService(response.getAccessToken(), this.apiEndpoint);
+            UploadService uploadService = new UploadService(response.getAccessToken(), this.apiEndpoint, recorder);
             JSONObject uploadResponse = uploadService.uploadArtifact(this.appPath);
-            Boolean result = uploadService.checkUploadStatus(uploadResponse.optString("taskId"));
+            String taskId = uploadResponse.optString("taskId");
+            BooleanSupplier superseded =
+                    () -> this.supersedeOlderBuilds && PublishSupersession.supersedingBuild(run) != null;
+            Boolean result = uploadService.checkUploadStatus(taskId, superseded);
+            while (!result) {
+                if (isSuperseded(run, listener, "upload status check")) {
+                    return;
+                }
+                // The newer build that cut the poll short has failed since, so this build is the latest again.
+                result = uploadService.checkUploadStatus(taskId, superseded);
+            }
 
             if (result) {
                 listener.getLogger()
                         .println(this.appPath + " uploaded to the Appcircle Enterprise Store successfully.");
-                if (!this.publishType.equals("0")) {
+                if (this.publishType.equals("0")) {
+                    published = true;
+                } else {
+                    if (isSuperseded(run, listener, "publish")) {
+                        return;
+                    }
                     listener.getLogger().println("App is publishing.");
                     String profileId = uploadService.getProfileId();
                     String appVersionId = uploadService.getLatestAppVersionId(profileId);
@@ -114,19 +193,54 @@ public class EnterpriseAppStoreBuilder extends Builder implements SimpleBuildSte
                             profileId, appVersionId, this.summary, this.releaseNotes, this.publishType);
                     if (isPublished) {
                         listener.getLogger().println("App is published.");
+                        published = true;
                     } else {
                         listener.getLogger().println("Something went wrong. App could not published.");
+                        failed = true;
                     }
                 }
             }
         } catch (JSONException e) {
             listener.getLogger().println(e.getMessage());
+            failed = true;
         } catch (URISyntaxException e) {
             listener.error("Invalid URI: " + e.getMessage());
+            failed = true;
         } catch (Exception e) {
             listener.getLogger().println(e.getMessage());
             run.setResult(Result.FAILURE);
+            failed = true;
+        } finally {
+            if (registered) {
+                PublishSupersession.release(run, published);
+            }
+            recorder.close();
+            if ((failed || this.dumpHttpEvents) && !recorder.getEvents().isEmpty()) {
+                try {
+                    HttpEventsAction.attach(run, recorder);
+                    listener.getLogger().println("HTTP events were saved to " + HttpEventsAction.FILE_NAME + ".");
+                } catch (IOException | RuntimeException e) {
+                    listener.getLogger().println("Warning: could not save HTTP events: " + e.getMessage());
+                    HttpEventsAction.release(run, recorder);
+                }
+            } else {
+                HttpEventsAction.release(run, recorder);
+            }
+        }
+    }
+
+    private boolean isSuperseded(Run<?, ?> run, TaskListener listener, String stage) {
+        if (!this.supersedeOlderBuilds) {
+            return false;
+        }
+        Integer newerBuild = PublishSupersession.supersedingBuild(run);
+        if (newerBuild == null) {
+            return false;
         }
+        listener.getLogger()
+                .println("Skipping " + stage + ": build #" + newerBuild + " of this job superseded this build.");
+        run.addAction(new SupersededAction(newerBuild, stage));
+        return true;
     }
 
     Boolean validateFileExtension(String filePath) {
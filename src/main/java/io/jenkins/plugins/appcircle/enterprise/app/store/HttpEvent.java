@@ -0,0 +1,119 @@
+package io.jenkins.plugins.appcircle.enterprise.app.store;
+
+import java.time.Instant;
+
+/**
+ * A single HTTP exchange with Appcircle as seen by {@link HttpEventRecorder}. The event is recorded once the response
+ * headers arrive; the body size and total time are filled in when the body has been read.
+ */
+public final class HttpEvent {
+    private final long timestamp;
+    private final String method;
+    private final String url;
+    private final int status;
+    private final long requestBytes;
+    private final long timeToFirstByteMillis;
+    private final int attempt;
+    private final boolean connectionReused;
+    private final String error;
+    private volatile long responseBytes = -1;
+    private volatile long totalMillis = -1;
+
+    HttpEvent(
+            long timestamp,
+            String method,
+            String url,
+            int status,
+            long requestBytes,
+            long timeToFirstByteMillis,
+            int attempt,
+            boolean connectionReused,
+            String error) {
+        this.timestamp = timestamp;
+        this.method = method;
+        this.url = url;
+        this.status = status;
+        this.requestBytes = requestBytes;
+        this.timeToFirstByteMillis = timeToFirstByteMillis;
+        this.attempt = attempt;
+        this.connectionReused = connectionReused;
+        this.error = error;
+    }
+
+    void finish(long responseBytes, long totalMillis) {
+        this.responseBytes = responseBytes;
+        this.totalMillis = totalMillis;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public String getMethod() {
+        return method;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public int getStatus() {
+        return status;
+    }
+
+    public long getRequestBytes() {
+        return requestBytes;
+    }
+
+    public long getResponseBytes() {
+        return responseBytes;
+    }
+
+    public long getTimeToFirstByteMillis() {
+        return timeToFirstByteMillis;
+    }
+
+    public long getTotalMillis() {
+        return totalMillis;
+    }
+
+    public int getAttempt() {
+        return attempt;
+    }
+
+    public boolean isConnectionReused() {
+        return connectionReused;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder line = new StringBuilder()
+                .append(Instant.ofEpochMilli(timestamp))
+                .append(' ')
+                .append(method)
+                .append(' ')
+                .append(url)
+                .append(" status=")
+                .append(status)
+                .append(" requestBytes=")
+                .append(requestBytes)
+                .append(" responseBytes=")
+                .append(responseBytes)
+                .append(" ttfb=")
+                .append(timeToFirstByteMillis)
+                .append("ms total=")
+                .append(totalMillis)
+                .append("ms attempt=")
+                .append(attempt)
+                .append(" reused=")
+                .append(connectionReused);
+        if (error != null) {
+            line.append(" error=").append(error);
+        }
+        return line.toString();
+    }
+}
@@ -0,0 +1,328 @@
+package io.jenkins.plugins.appcircle.enterprise.app.store;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import java.io.Closeable;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import jenkins.util.SystemProperties;
+import org.apache.http.HttpClientConnection;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpEntityEnclosingRequest;
+import org.apache.http.HttpException;
+import org.apache.http.HttpHost;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.protocol.HttpClientContext;
+import org.apache.http.entity.HttpEntityWrapper;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.protocol.HttpContext;
+import org.apache.http.protocol.HttpRequestExecutor;
+
+/**
+ * Per-build, fixed-size ring buffer of the HTTP exchanges made with Appcircle. Writers claim a slot with a single
+ * atomic increment and never block, so the recorder is cheap enough to stay enabled; once full, the oldest events are
+ * overwritten. The recorder also owns the pooled HTTP client its requests go through, so connection reuse between
+ * requests of the same build is real and visible in the events; {@link #close()} releases it.
+ */
+public class HttpEventRecorder implements Closeable {
+
+    static final int DEFAULT_CAPACITY =
+            SystemProperties.getInteger(HttpEventRecorder.class.getName() + ".capacity", 256);
+
+    private static final String ATTEMPT_ATTRIBUTE = HttpEventRecorder.class.getName() + ".attempt";
+    private static final String SENT_ATTRIBUTE = HttpEventRecorder.class.getName() + ".sent";
+    private static final String RECEIVED_ATTRIBUTE = HttpEventRecorder.class.getName() + ".received";
+
+    private final AtomicReferenceArray<HttpEvent> slots;
+    private final AtomicLong next = new AtomicLong();
+    private final RequestConfig requestConfig;
+    private volatile int attempt = 1;
+    private CloseableHttpClient client;
+
+    public HttpEventRecorder() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public HttpEventRecorder(int capacity) {
+        this(capacity, null);
+    }
+
+    /** @param requestConfig timeouts and other defaults for the clients created by this recorder, or {@code null} */
+    public HttpEventRecorder(int capacity, @CheckForNull RequestConfig requestConfig) {
+        this.slots = new AtomicReferenceArray<>(Math.max(1, capacity));
+        this.requestConfig = requestConfig;
+    }
+
+    void record(HttpEvent event) {
+        long index = next.getAndIncrement();
+        slots.set((int) (index % slots.length()), event);
+    }
+
+    /** Returns the buffered events, oldest first. */
+    public List<HttpEvent> getEvents() {
+        long end = next.get();
+        long start = Math.max(0, end - slots.length());
+        List<HttpEvent> events = new ArrayList<>((int) (end - start));
+        for (long i = start; i < end; i++) {
+            HttpEvent event = slots.get((int) (i % slots.length()));
+            if (event != null) {
+                events.add(event);
+            }
+        }
+        return events;
+    }
+
+    /** Number of events dropped because the buffer wrapped around. */
+    public long getDroppedCount() {
+        return Math.max(0, next.get() - slots.length());
+    }
+
+    /** Sets the attempt recorded for requests that are not tagged through {@link #attemptContext(int)}. */
+    void setAttempt(int attempt) {
+        this.attempt = attempt;
+    }
+
+    /**
+     * Returns the pooled HTTP client whose requests are recorded into this buffer. Callers may close it as usual; the
+     * connections stay pooled until {@link #close()}.
+     */
+    synchronized CloseableHttpClient getClient() {
+        if (client == null) {
+            HttpClientBuilder builder = HttpClients.custom().setRequestExecutor(new RecordingRequestExecutor());
+            if (requestConfig != null) {
+                builder.setDefaultRequestConfig(requestConfig);
+            }
+            client = builder.build();
+        }
+        return new SharedClient(client);
+    }
+
+    /** Closes the pooled client; a later {@link #getClient()} starts a new pool. Recorded events are kept. */
+    @Override
+    public synchronized void close() {
+        if (client != null) {
+            try {
+                client.close();
+            } catch (IOException e) {
+                // Closing only drops pooled connections; nothing to recover.
+            }
+            client = null;
+        }
+    }
+
+    /** Creates an execution context that tags the request with its 1-based retry attempt. */
+    static HttpClientContext attemptContext(int attempt) {
+        HttpClientContext context = HttpClientContext.create();
+        context.setAttribute(ATTEMPT_ATTRIBUTE, attempt);
+        return context;
+    }
+
+    /** Keeps scheme, host and path, and masks query parameter values, which may carry upload signatures. */
+    static String redact(String url) {
+        int queryStart = url.indexOf('?');
+        if (queryStart < 0) {
+            return url;
+        }
+        StringBuilder redacted = new StringBuilder(url.substring(0, queryStart + 1));
+        String[] parameters = url.substring(queryStart + 1).split("&");
+        for (int i = 0; i < parameters.length; i++) {
+            if (i > 0) {
+                redacted.append('&');
+            }
+            int equals = parameters[i].indexOf('=');
+            redacted.append(equals < 0 ? parameters[i] : parameters[i].substring(0, equals) + "=***");
+        }
+        return redacted.toString();
+    }
+
+    private final class RecordingRequestExecutor extends HttpRequestExecutor {
+        @Override
+        public HttpResponse execute(HttpRequest request, HttpClientConnection conn, HttpContext context)
+                throws IOException, HttpException {
+            long timestamp = System.currentTimeMillis();
+            long start = System.nanoTime();
+            boolean reused = conn.getMetrics().getRequestCount() > 0;
+            String method = request.getRequestLine().getMethod();
+            String url = redact(urlOf(request, context));
+            long requestBytes = request instanceof HttpEntityEnclosingRequest
+                            && ((HttpEntityEnclosingRequest) request).getEntity() != null
+                    ? ((HttpEntityEnclosingRequest) request).getEntity().getContentLength()
+                    : 0;
+            Object taggedAttempt = context.getAttribute(ATTEMPT_ATTRIBUTE);
+            int attemptNumber = taggedAttempt instanceof Integer ? (Integer) taggedAttempt : attempt;
+            context.removeAttribute(SENT_ATTRIBUTE);
+            context.removeAttribute(RECEIVED_ATTRIBUTE);
+
+            HttpResponse response;
+            try {
+                response = super.execute(request, conn, context);
+            } catch (IOException | HttpException | RuntimeException e) {
+                HttpEvent event = new HttpEvent(
+                        timestamp,
+                        method,
+                        url,
+                        -1,
+                        requestBytes,
+                        -1,
+                        attemptNumber,
+                        reused,
+                        e.getClass().getSimpleName() + ": " + e.getMessage());
+                event.finish(-1, elapsedMillis(start));
+                record(event);
+                throw e;
+            }
+
+            HttpEvent event = new HttpEvent(
+                    timestamp,
+                    method,
+                    url,
+                    response.getStatusLine().getStatusCode(),
+                    requestBytes,
+                    timeToFirstByteMillis(context, start),
+                    attemptNumber,
+                    reused,
+                    null);
+            record(event);
+            if (response.getEntity() == null) {
+                event.finish(0, elapsedMillis(start));
+            } else {
+                response.setEntity(new RecordingEntity(response.getEntity(), event, start));
+            }
+            return response;
+        }
+
+        @Override
+        protected HttpResponse doSendRequest(HttpRequest request, HttpClientConnection conn, HttpContext context)
+                throws IOException, HttpException {
+            HttpResponse response = super.doSendRequest(request, conn, context);
+            context.setAttribute(SENT_ATTRIBUTE, System.nanoTime());
+            return response;
+        }
+
+        @Override
+        protected HttpResponse doReceiveResponse(HttpRequest request, HttpClientConnection conn, HttpContext context)
+                throws HttpException, IOException {
+            HttpResponse response = super.doReceiveResponse(request, conn, context);
+            context.setAttribute(RECEIVED_ATTRIBUTE, System.nanoTime());
+            return response;
+        }
+
+        /** Time from the end of the request body to the response headers, so uploads do not count as waiting. */
+        private long timeToFirstByteMillis(HttpContext context, long start) {
+            Object sent = context.getAttribute(SENT_ATTRIBUTE);
+            Object received = context.getAttribute(RECEIVED_ATTRIBUTE);
+            long from = sent instanceof Long ? (Long) sent : start;
+            long to = received instanceof Long ? (Long) received : System.nanoTime();
+            return TimeUnit.NANOSECONDS.toMillis(Math.max(0, to - from));
+        }
+
+        private String urlOf(HttpRequest request, HttpContext context) {
+            String uri = request.getRequestLine().getUri();
+            if (uri.startsWith("http://") || uri.startsWith("https://")) {
+                return uri;
+            }
+            HttpHost target = HttpClientContext.adapt(context).getTargetHost();
+            return target != null ? target.toURI() + uri : uri;
+        }
+    }
+
+    /** View of the pooled client that leaves the pool open when a caller closes it. */
+    @SuppressWarnings("deprecation")
+    private static final class SharedClient extends CloseableHttpClient {
+        private final CloseableHttpClient delegate;
+
+        SharedClient(CloseableHttpClient delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        protected CloseableHttpResponse doExecute(HttpHost target, HttpRequest request, HttpContext context)
+                throws IOException {
+            return delegate.execute(target, request, context);
+        }
+
+        @Override
+        public void close() {
+            // The pool belongs to the recorder.
+        }
+
+        @Override
+        public org.apache.http.params.HttpParams getParams() {
+            return delegate.getParams();
+        }
+
+        @Override
+        public org.apache.http.conn.ClientConnectionManager getConnectionManager() {
+            return delegate.getConnectionManager();
+        }
+    }
+
+    /** Counts the response body as it is read and completes the event at end of stream or close. */
+    private static final class RecordingEntity extends HttpEntityWrapper {
+        private final HttpEvent event;
+        private final long start;
+
+        RecordingEntity(HttpEntity wrapped, HttpEvent event, long start) {
+            super(wrapped);
+            this.event = event;
+            this.start = start;
+        }
+
+        @Override
+        public InputStream getContent() throws IOException {
+            return new FilterInputStream(super.getContent()) {
+                private long bytes;
+                private boolean finished;
+
+                @Override
+                public int read() throws IOException {
+                    int b = super.read();
+                    if (b < 0) {
+                        finish();
+                    } else {
+                        bytes++;
+                    }
+                    return b;
+                }
+
+                @Override
+                public int read(byte[] buffer, int offset, int length) throws IOException {
+                    int count = super.read(buffer, offset, length);
+                    if (count < 0) {
+                        finish();
+                    } else {
+                        bytes += count;
+                    }
+                    return count;
+                }
+
+                @Override
+                public void close() throws IOException {
+                    finish();
+                    super.close();
+                }
+
+                private void finish() {
+                    if (!finished) {
+                        finished = true;
+                        event.finish(bytes, elapsedMillis(start));
+                    }
+                }
+            };
+        }
+    }
+
+    private static long elapsedMillis(long startNanos) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+    }
+}
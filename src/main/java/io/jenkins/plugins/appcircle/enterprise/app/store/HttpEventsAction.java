@@ -0,0 +1,110 @@
+package io.jenkins.plugins.appcircle.enterprise.app.store;
+
+import hudson.model.Run;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import jenkins.model.RunAction2;
+import org.kohsuke.stapler.StaplerRequest;
+import org.kohsuke.stapler.StaplerResponse;
+
+/**
+ * Exposes the HTTP events recorded while publishing a build. While the step or its outbox delivery is running, the
+ * page renders the live buffer on demand; afterwards it serves the copy dumped to a file in the build directory.
+ */
+public class HttpEventsAction implements RunAction2 {
+    static final String FILE_NAME = "appcircle-http-events.log";
+
+    private transient Run<?, ?> run;
+    private transient volatile HttpEventRecorder live;
+
+    /** Links the live contents of {@code recorder} from the build page until it is dumped or released. */
+    static void track(Run<?, ?> run, HttpEventRecorder recorder) {
+        HttpEventsAction action = run.getAction(HttpEventsAction.class);
+        if (action == null) {
+            action = new HttpEventsAction();
+            run.addAction(action);
+        }
+        action.live = recorder;
+    }
+
+    /** Writes the recorder contents next to the build and links them from the build page. */
+    static void attach(Run<?, ?> run, HttpEventRecorder recorder) throws IOException {
+        File file = new File(run.getRootDir(), FILE_NAME);
+        try (PrintWriter writer = new PrintWriter(Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8))) {
+            write(writer, recorder);
+        }
+        HttpEventsAction action = run.getAction(HttpEventsAction.class);
+        if (action == null) {
+            run.addAction(new HttpEventsAction());
+        } else if (action.live == recorder) {
+            action.live = null;
+        }
+    }
+
+    /** Stops showing {@code recorder}; the link goes away unless an earlier dump exists. */
+    static void release(Run<?, ?> run, HttpEventRecorder recorder) {
+        HttpEventsAction action = run.getAction(HttpEventsAction.class);
+        if (action == null || action.live != recorder) {
+            return;
+        }
+        action.live = null;
+        if (!new File(run.getRootDir(), FILE_NAME).isFile()) {
+            run.removeAction(action);
+        }
+    }
+
+    private static void write(PrintWriter writer, HttpEventRecorder recorder) {
+        if (recorder.getDroppedCount() > 0) {
+            writer.println("# " + recorder.getDroppedCount() + " older events were dropped");
+        }
+        for (HttpEvent event : recorder.getEvents()) {
+            writer.println(event);
+        }
+    }
+
+    public void doIndex(StaplerRequest req, StaplerResponse rsp) throws IOException {
+        HttpEventRecorder recorder = live;
+        if (recorder != null) {
+            rsp.setContentType("text/plain;charset=UTF-8");
+            PrintWriter writer = rsp.getWriter();
+            write(writer, recorder);
+            writer.flush();
+            return;
+        }
+        File file = new File(run.getRootDir(), FILE_NAME);
+        if (!file.isFile()) {
+            rsp.sendError(StaplerResponse.SC_NOT_FOUND);
+            return;
+        }
+        rsp.setContentType("text/plain;charset=UTF-8");
+        Files.copy(file.toPath(), rsp.getOutputStream());
+    }
+
+    @Override
+    public void onAttached(Run<?, ?> r) {
+        this.run = r;
+    }
+
+    @Override
+    public void onLoad(Run<?, ?> r) {
+        this.run = r;
+    }
+
+    @Override
+    public String getIconFileName() {
+        return "notepad.png";
+    }
+
+    @Override
+    public String getDisplayName() {
+        return "Appcircle HTTP Events";
+    }
+
+    @Override
+    public String getUrlName() {
+        return "appcircle-http-events";
+    }
+}
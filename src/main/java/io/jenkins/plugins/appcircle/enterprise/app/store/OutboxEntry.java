@@ -0,0 +1,152 @@
+package io.jenkins.plugins.appcircle.enterprise.app.store;
+
+import hudson.model.Run;
+import hudson.util.Secret;
+import java.io.File;
+
+/** A publish request waiting in the {@link PublishOutbox} for delivery to the Appcircle Enterprise App Store. */
+public class OutboxEntry {
+    private final String id;
+    private final String runId;
+    private final String jobName;
+    private final int buildNumber;
+    private final String appPath;
+    private final String summary;
+    private final String releaseNotes;
+    private final String publishType;
+    private final Secret personalAPIToken;
+    private final String authEndpoint;
+    private final String apiEndpoint;
+    private final boolean supersedeOlderBuilds;
+    private final boolean dumpHttpEvents;
+    private final long enqueuedAt;
+    private int attempts;
+    private boolean uploaded;
+    private String profileId;
+    private String appVersionId;
+    private String lastError;
+
+    OutboxEntry(
+            String id,
+            Run<?, ?> run,
+            File artifact,
+            String summary,
+            String releaseNotes,
+            String publishType,
+            Secret personalAPIToken,
+            String authEndpoint,
+            String apiEndpoint,
+            boolean supersedeOlderBuilds,
+            boolean dumpHttpEvents) {
+        this.id = id;
+        this.runId = run.getExternalizableId();
+        this.jobName = run.getParent().getFullName();
+        this.buildNumber = run.getNumber();
+        this.appPath = artifact.getAbsolutePath();
+        this.summary = summary;
+        this.releaseNotes = releaseNotes;
+        this.publishType = publishType;
+        this.personalAPIToken = personalAPIToken;
+        this.authEndpoint = authEndpoint;
+        this.apiEndpoint = apiEndpoint;
+        this.supersedeOlderBuilds = supersedeOlderBuilds;
+        this.dumpHttpEvents = dumpHttpEvents;
+        this.enqueuedAt = System.currentTimeMillis();
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getRunId() {
+        return runId;
+    }
+
+    public String getJobName() {
+        return jobName;
+    }
+
+    public int getBuildNumber() {
+        return buildNumber;
+    }
+
+    public String getAppPath() {
+        return appPath;
+    }
+
+    String getSummary() {
+        return summary;
+    }
+
+    String getReleaseNotes() {
+        return releaseNotes;
+    }
+
+    public String getPublishType() {
+        return publishType;
+    }
+
+    Secret getPersonalAPIToken() {
+        return personalAPIToken;
+    }
+
+    String getAuthEndpoint() {
+        return authEndpoint;
+    }
+
+    String getApiEndpoint() {
+        return apiEndpoint;
+    }
+
+    boolean isSupersedeOlderBuilds() {
+        return supersedeOlderBuilds;
+    }
+
+    boolean isDumpHttpEvents() {
+        return dumpHttpEvents;
+    }
+
+    public long getEnqueuedAt() {
+        return enqueuedAt;
+    }
+
+    public int getAttempts() {
+        return attempts;
+    }
+
+    void recordAttempt() {
+        attempts++;
+    }
+
+    /** Takes back an attempt that was cut short by shutdown rather than failed. */
+    void revokeAttempt() {
+        attempts--;
+    }
+
+    boolean isUploaded() {
+        return uploaded;
+    }
+
+    /** Records that the binary was uploaded as {@code appVersionId} in {@code profileId}. */
+    void markUploaded(String profileId, String appVersionId) {
+        this.uploaded = true;
+        this.profileId = profileId;
+        this.appVersionId = appVersionId;
+    }
+
+    String getProfileId() {
+        return profileId;
+    }
+
+    String getAppVersionId() {
+        return appVersionId;
+    }
+
+    public String getLastError() {
+        return lastError;
+    }
+
+    void setLastError(String lastError) {
+        this.lastError = lastError;
+    }
+}
@@ -0,0 +1,49 @@
+package io.jenkins.plugins.appcircle.enterprise.app.store;
+
+import hudson.model.Action;
+
+/** Result of an outbox delivery, attached to the build that queued it once delivery has finished. */
+public class OutboxResultAction implements Action {
+    private final boolean published;
+    private final int attempts;
+    private final String message;
+    private final long completedAt;
+
+    public OutboxResultAction(boolean published, int attempts, String message) {
+        this.published = published;
+        this.attempts = attempts;
+        this.message = message;
+        this.completedAt = System.currentTimeMillis();
+    }
+
+    public boolean isPublished() {
+        return published;
+    }
+
+    public int getAttempts() {
+        return attempts;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public long getCompletedAt() {
+        return completedAt;
+    }
+
+    @Override
+    public String getIconFileName() {
+        return null;
+    }
+
+    @Override
+    public String getDisplayName() {
+        return "Appcircle Outbox Delivery";
+    }
+
+    @Override
+    public String getUrlName() {
+        return null;
+    }
+}
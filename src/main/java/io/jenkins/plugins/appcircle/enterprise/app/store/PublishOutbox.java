@@ -0,0 +1,494 @@
+package io.jenkins.plugins.appcircle.enterprise.app.store;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.BulkChange;
+import hudson.Extension;
+import hudson.ExtensionList;
+import hudson.FilePath;
+import hudson.Util;
+import hudson.XmlFile;
+import hudson.init.InitMilestone;
+import hudson.init.Initializer;
+import hudson.init.Terminator;
+import hudson.model.ManagementLink;
+import hudson.model.Run;
+import hudson.model.Saveable;
+import hudson.model.listeners.SaveableListener;
+import hudson.security.ACL;
+import hudson.security.ACLContext;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+import hudson.util.Secret;
+import io.jenkins.plugins.appcircle.enterprise.app.store.Models.UserResponse;
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import jenkins.model.Jenkins;
+import jenkins.util.SystemProperties;
+import org.apache.http.client.config.RequestConfig;
+import org.json.JSONObject;
+
+/**
+ * Durable store-and-forward queue for publishes. Builds that enable the outbox hand their artifact over and finish
+ * right away; a small pool of background workers then delivers each entry to Appcircle with retries and attaches the
+ * outcome to the originating build. Pending entries are persisted to {@code JENKINS_HOME} and resumed after a restart.
+ */
+@Extension
+public class PublishOutbox extends ManagementLink implements Saveable {
+
+    private static final Logger LOGGER = Logger.getLogger(PublishOutbox.class.getName());
+
+    static final int MAX_CONCURRENCY =
+            SystemProperties.getInteger(PublishOutbox.class.getName() + ".maxConcurrency", 2);
+    static final int MAX_ATTEMPTS = SystemProperties.getInteger(PublishOutbox.class.getName() + ".maxAttempts", 10);
+
+    private static final long INITIAL_RETRY_DELAY_MILLIS = TimeUnit.SECONDS.toMillis(30);
+    private static final long MAX_RETRY_DELAY_MILLIS = TimeUnit.MINUTES.toMillis(30);
+    private static final long THROUGHPUT_WINDOW_MILLIS = TimeUnit.HOURS.toMillis(1);
+    private static final long UPLOAD_STATUS_TIMEOUT_MILLIS = TimeUnit.MINUTES.toMillis(
+            SystemProperties.getInteger(PublishOutbox.class.getName() + ".uploadStatusTimeoutMinutes", 30));
+
+    /** Bounds every request so that a hung connection fails the attempt instead of stalling the worker. */
+    private static final RequestConfig REQUEST_CONFIG = RequestConfig.custom()
+            .setConnectTimeout((int) TimeUnit.SECONDS.toMillis(30))
+            .setConnectionRequestTimeout((int) TimeUnit.SECONDS.toMillis(30))
+            .setSocketTimeout((int) TimeUnit.SECONDS.toMillis(
+                    SystemProperties.getInteger(PublishOutbox.class.getName() + ".socketTimeoutSeconds", 120)))
+            .build();
+
+    /**
+     * Serializes upload commit, processing and version lookup across workers. Appcircle resolves the profile from the
+     * binary, so the new version is identified as the latest one once its processing finishes; that only holds while
+     * no other worker commits an upload in between.
+     */
+    private static final Object UPLOAD_LOCK = new Object();
+
+    private final List<OutboxEntry> entries = new ArrayList<>();
+    private long deliveredCount;
+    private long failedCount;
+    private long supersededCount;
+
+    private transient Deque<Long> recentDeliveries = new ArrayDeque<>();
+    private transient ScheduledExecutorService executor;
+    private transient volatile boolean shuttingDown;
+    /** One recorder per entry, so a dump covers every attempt of a delivery. */
+    private final transient Map<String, HttpEventRecorder> recorders = new ConcurrentHashMap<>();
+
+    public static PublishOutbox get() {
+        return ExtensionList.lookupSingleton(PublishOutbox.class);
+    }
+
+    /**
+     * Copies the artifact into the outbox directory on the controller and queues it for delivery.
+     *
+     * @return the queued entry
+     */
+    OutboxEntry enqueue(
+            Run<?, ?> run,
+            FilePath artifact,
+            String summary,
+            String releaseNotes,
+            String publishType,
+            Secret personalAPIToken,
+            String authEndpoint,
+            String apiEndpoint,
+            boolean supersedeOlderBuilds,
+            boolean dumpHttpEvents)
+            throws IOException, InterruptedException {
+        String id = UUID.randomUUID().toString();
+        File target = new File(new File(getRootDir(), id), artifact.getName());
+        new FilePath(target).getParent().mkdirs();
+        artifact.copyTo(new FilePath(target));
+
+        OutboxEntry entry = new OutboxEntry(
+                id,
+                run,
+                target,
+                summary,
+                releaseNotes,
+                publishType,
+                personalAPIToken,
+                authEndpoint,
+                apiEndpoint,
+                supersedeOlderBuilds,
+                dumpHttpEvents);
+        if (supersedeOlderBuilds) {
+            PublishSupersession.register(entry.getJobName(), entry.getBuildNumber());
+        }
+        HttpEventsAction.track(run, recorderFor(entry));
+        synchronized (this) {
+            entries.add(entry);
+            save();
+        }
+        schedule(entry, 0);
+        return entry;
+    }
+
+    synchronized void schedule(OutboxEntry entry, long delayMillis) {
+        if (shuttingDown) {
+            // The entry stays on disk and is resumed on the next start.
+            return;
+        }
+        if (executor == null) {
+            executor = Executors.newScheduledThreadPool(
+                    MAX_CONCURRENCY,
+                    new NamingThreadFactory(new DaemonThreadFactory(), "Appcircle outbox worker"));
+        }
+        executor.schedule(() -> attempt(entry), delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    void attempt(OutboxEntry entry) {
+        synchronized (this) {
+            entry.recordAttempt();
+        }
+        HttpEventRecorder recorder = recorderFor(entry);
+        recorder.setAttempt(entry.getAttempts());
+        try {
+            Integer newerBuild = deliver(entry, recorder);
+            if (newerBuild != null) {
+                supersede(entry, newerBuild);
+            } else {
+                complete(entry, true, "Published.", recorder);
+            }
+        } catch (Exception e) {
+            if (e instanceof InterruptedException || Thread.currentThread().isInterrupted() || shuttingDown) {
+                // Cut short by shutdown, not a failed delivery; the entry resumes from disk on the next start.
+                synchronized (this) {
+                    entry.revokeAttempt();
+                }
+                return;
+            }
+            LOGGER.log(
+                    Level.FINE, "Outbox delivery attempt " + entry.getAttempts() + " failed for " + entry.getId(), e);
+            synchronized (this) {
+                entry.setLastError(e.getMessage());
+                saveQuietly();
+            }
+            if (entry.getAttempts() >= MAX_ATTEMPTS) {
+                complete(entry, false, e.getMessage(), recorder);
+            } else {
+                schedule(entry, retryDelayMillis(entry.getAttempts()));
+            }
+        } finally {
+            // Connections are reused within an attempt, not across the backoff between attempts.
+            recorder.close();
+        }
+    }
+
+    private HttpEventRecorder recorderFor(OutboxEntry entry) {
+        return recorders.computeIfAbsent(
+                entry.getId(), id -> new HttpEventRecorder(HttpEventRecorder.DEFAULT_CAPACITY, REQUEST_CONFIG));
+    }
+
+    /** Exponential backoff after {@code attempts} failed attempts, capped at {@link #MAX_RETRY_DELAY_MILLIS}. */
+    static long retryDelayMillis(int attempts) {
+        return Math.min(INITIAL_RETRY_DELAY_MILLIS << Math.min(Math.max(attempts - 1, 0), 16), MAX_RETRY_DELAY_MILLIS);
+    }
+
+    /** Logs in and returns the service that delivers {@code entry}. */
+    UploadService openSession(OutboxEntry entry, HttpEventRecorder recorder) throws IOException, URISyntaxException {
+        UserResponse response =
+                AuthService.getAcToken(entry.getPersonalAPIToken().getPlainText(), entry.getAuthEndpoint(), recorder);
+        return new UploadService(response.getAccessToken(), entry.getApiEndpoint(), recorder);
+    }
+
+    /**
+     * Uploads and publishes the entry.
+     *
+     * @return the number of a newer build of the same job that superseded this entry, or {@code null} once delivered
+     */
+    @CheckForNull
+    private Integer deliver(OutboxEntry entry, HttpEventRecorder recorder) throws Exception {
+        UploadService uploadService = openSession(entry, recorder);
+
+        // An entry whose upload already went through only retries the publish, so the binary is not uploaded twice.
+        if (!entry.isUploaded()) {
+            Integer newerBuild = supersedingBuild(entry);
+            if (newerBuild != null) {
+                return newerBuild;
+            }
+            // The binary transfer is the slow part and does not affect version resolution, so it runs unlocked.
+            JSONObject staged = uploadService.stageArtifact(entry.getAppPath());
+            synchronized (UPLOAD_LOCK) {
+                newerBuild = supersedingBuild(entry);
+                if (newerBuild != null) {
+                    return newerBuild;
+                }
+                JSONObject uploadResponse =
+                        uploadService.commitFileUpload(staged.optString("fileId"), staged.optString("fileName"));
+                Boolean processed = uploadService.checkUploadStatus(
+                        uploadResponse.optString("taskId"),
+                        () -> supersedingBuild(entry) != null,
+                        System.currentTimeMillis() + UPLOAD_STATUS_TIMEOUT_MILLIS);
+                if (!processed) {
+                    newerBuild = supersedingBuild(entry);
+                    if (newerBuild != null) {
+                        return newerBuild;
+                    }
+                    throw new IOException("Upload status check was cancelled by a build that has since failed.");
+                }
+                String profileId = uploadService.getProfileId();
+                String appVersionId = uploadService.getLatestAppVersionId(profileId);
+                synchronized (this) {
+                    entry.markUploaded(profileId, appVersionId);
+                    saveQuietly();
+                }
+            }
+        }
+
+        if (!entry.getPublishType().equals("0")) {
+            Integer newerBuild = supersedingBuild(entry);
+            if (newerBuild != null) {
+                return newerBuild;
+            }
+            Boolean isPublished = uploadService.publishEnterpriseAppVersion(
+                    entry.getProfileId(),
+                    entry.getAppVersionId(),
+                    entry.getSummary(),
+                    entry.getReleaseNotes(),
+                    entry.getPublishType());
+            if (!isPublished) {
+                throw new IOException("App could not be published.");
+            }
+        }
+        return null;
+    }
+
+    @CheckForNull
+    private static Integer supersedingBuild(OutboxEntry entry) {
+        if (!entry.isSupersedeOlderBuilds()) {
+            return null;
+        }
+        return PublishSupersession.supersedingBuild(entry.getJobName(), entry.getBuildNumber());
+    }
+
+    private void supersede(OutboxEntry entry, int newerBuild) {
+        synchronized (this) {
+            entries.remove(entry);
+            supersededCount++;
+            saveQuietly();
+        }
+        HttpEventRecorder recorder = recorders.remove(entry.getId());
+        PublishSupersession.release(entry.getJobName(), entry.getBuildNumber(), false);
+        deleteArtifact(entry);
+
+        String stage = entry.isUploaded() ? "publish" : "upload";
+        try (ACLContext ignored = ACL.as2(ACL.SYSTEM2)) {
+            Run<?, ?> run = Run.fromExternalizableId(entry.getRunId());
+            if (run == null) {
+                return;
+            }
+            run.addAction(new SupersededAction(newerBuild, stage));
+            if (recorder != null) {
+                HttpEventsAction.release(run, recorder);
+            }
+            run.save();
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Could not record supersession on " + entry.getRunId(), e);
+        }
+    }
+
+    private void complete(OutboxEntry entry, boolean published, String message, HttpEventRecorder recorder) {
+        synchronized (this) {
+            entries.remove(entry);
+            if (published) {
+                deliveredCount++;
+                recentDeliveries.addLast(System.currentTimeMillis());
+                pruneRecentDeliveries();
+            } else {
+                failedCount++;
+            }
+            saveQuietly();
+        }
+        if (entry.isSupersedeOlderBuilds()) {
+            PublishSupersession.release(entry.getJobName(), entry.getBuildNumber(), published);
+        }
+        recorders.remove(entry.getId());
+        deleteArtifact(entry);
+
+        try (ACLContext ignored = ACL.as2(ACL.SYSTEM2)) {
+            Run<?, ?> run = Run.fromExternalizableId(entry.getRunId());
+            if (run == null) {
+                LOGGER.log(Level.FINE, "Build {0} no longer exists; dropping outbox result", entry.getRunId());
+                return;
+            }
+            run.addAction(new OutboxResultAction(published, entry.getAttempts(), message));
+            if (!published || entry.isDumpHttpEvents()) {
+                try {
+                    HttpEventsAction.attach(run, recorder);
+                } catch (IOException | RuntimeException e) {
+                    LOGGER.log(Level.WARNING, "Could not save HTTP events of " + entry.getRunId(), e);
+                    HttpEventsAction.release(run, recorder);
+                }
+            } else {
+                HttpEventsAction.release(run, recorder);
+            }
+            run.save();
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Could not record outbox result on " + entry.getRunId(), e);
+        }
+    }
+
+    private void deleteArtifact(OutboxEntry entry) {
+        try {
+            Util.deleteRecursive(new File(getRootDir(), entry.getId()));
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Could not delete outbox artifact of " + entry.getId(), e);
+        }
+    }
+
+    private void pruneRecentDeliveries() {
+        long cutoff = System.currentTimeMillis() - THROUGHPUT_WINDOW_MILLIS;
+        while (!recentDeliveries.isEmpty() && recentDeliveries.peekFirst() < cutoff) {
+            recentDeliveries.removeFirst();
+        }
+    }
+
+    public synchronized List<OutboxEntry> getEntries() {
+        return new ArrayList<>(entries);
+    }
+
+    public synchronized int getDepth() {
+        return entries.size();
+    }
+
+    /** Age in milliseconds of the oldest pending entry, or 0 if the queue is empty. */
+    public synchronized long getOldestAgeMillis() {
+        long now = System.currentTimeMillis();
+        long oldest = now;
+        for (OutboxEntry entry : entries) {
+            oldest = Math.min(oldest, entry.getEnqueuedAt());
+        }
+        return now - oldest;
+    }
+
+    public String getOldestAge() {
+        return Util.getTimeSpanString(getOldestAgeMillis());
+    }
+
+    /** Number of entries delivered during the last hour. */
+    public synchronized int getDeliveredLastHour() {
+        pruneRecentDeliveries();
+        return recentDeliveries.size();
+    }
+
+    public synchronized long getDeliveredCount() {
+        return deliveredCount;
+    }
+
+    public synchronized long getFailedCount() {
+        return failedCount;
+    }
+
+    public synchronized long getSupersededCount() {
+        return supersededCount;
+    }
+
+    public int getMaxConcurrency() {
+        return MAX_CONCURRENCY;
+    }
+
+    private File getRootDir() {
+        return new File(Jenkins.get().getRootDir(), "appcircle-outbox");
+    }
+
+    private XmlFile getConfigFile() {
+        return new XmlFile(
+                Jenkins.XSTREAM2, new File(Jenkins.get().getRootDir(), PublishOutbox.class.getName() + ".xml"));
+    }
+
+    @Override
+    public synchronized void save() throws IOException {
+        if (BulkChange.contains(this)) {
+            return;
+        }
+        XmlFile file = getConfigFile();
+        file.write(this);
+        SaveableListener.fireOnChange(this, file);
+    }
+
+    private void saveQuietly() {
+        try {
+            save();
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Could not persist the Appcircle outbox", e);
+        }
+    }
+
+    synchronized void load() throws IOException {
+        XmlFile file = getConfigFile();
+        if (file.exists()) {
+            file.unmarshal(this);
+        }
+        if (recentDeliveries == null) {
+            recentDeliveries = new ArrayDeque<>();
+        }
+    }
+
+    @Initializer(after = InitMilestone.JOB_CONFIG_ADAPTED)
+    public static void resumePending() throws IOException {
+        get().resume();
+    }
+
+    /** Loads the persisted queue and schedules every pending entry. */
+    void resume() throws IOException {
+        load();
+        for (OutboxEntry entry : getEntries()) {
+            if (entry.isSupersedeOlderBuilds()) {
+                PublishSupersession.register(entry.getJobName(), entry.getBuildNumber());
+            }
+            schedule(entry, 0);
+        }
+    }
+
+    @Terminator
+    public static void shutdown() {
+        PublishOutbox outbox = get();
+        synchronized (outbox) {
+            outbox.shuttingDown = true;
+            if (outbox.executor != null) {
+                outbox.executor.shutdownNow();
+                outbox.executor = null;
+            }
+        }
+    }
+
+    @Override
+    public String getIconFileName() {
+        return "symbol-cloud";
+    }
+
+    @Override
+    public String getUrlName() {
+        return "appcircle-outbox";
+    }
+
+    @Override
+    public String getDisplayName() {
+        return Messages.PublishOutbox_DisplayName();
+    }
+
+    @Override
+    public String getDescription() {
+        return Messages.PublishOutbox_Description();
+    }
+
+    @NonNull
+    @Override
+    public Category getCategory() {
+        return Category.STATUS;
+    }
+}
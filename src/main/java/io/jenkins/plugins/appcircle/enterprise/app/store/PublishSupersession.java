@@ -0,0 +1,77 @@
+package io.jenkins.plugins.appcircle.enterprise.app.store;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import hudson.model.Run;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Tracks, per job, the builds that are still publishing and the newest build that has published, so that an older
+ * build still uploading, polling or publishing can step aside once a newer one is in flight or done ("latest wins").
+ * A newer build that fails stops superseding older ones as soon as it is released, while the newest published build
+ * keeps superseding older builds that reach the step later. Jobs that never published drop out of the registry once
+ * none of their builds are in flight.
+ */
+final class PublishSupersession {
+
+    private static final Map<String, JobState> JOBS = new HashMap<>();
+
+    private PublishSupersession() {}
+
+    static String keyOf(Run<?, ?> run) {
+        return run.getParent().getFullName();
+    }
+
+    /** Registers {@code run} as a build of its job that is now publishing. */
+    static void register(Run<?, ?> run) {
+        register(keyOf(run), run.getNumber());
+    }
+
+    static synchronized void register(String key, int buildNumber) {
+        JOBS.computeIfAbsent(key, k -> new JobState()).active.add(buildNumber);
+    }
+
+    /** Marks {@code run} as no longer publishing; {@code published} records whether it reached the Store. */
+    static void release(Run<?, ?> run, boolean published) {
+        release(keyOf(run), run.getNumber(), published);
+    }
+
+    static synchronized void release(String key, int buildNumber, boolean published) {
+        JobState state = JOBS.get(key);
+        if (state == null) {
+            return;
+        }
+        state.active.remove(buildNumber);
+        if (published) {
+            state.lastPublished = Math.max(state.lastPublished, buildNumber);
+        }
+        if (state.active.isEmpty() && state.lastPublished == 0) {
+            JOBS.remove(key);
+        }
+    }
+
+    /**
+     * Returns the number of a newer build that is in flight or has published and therefore supersedes {@code run}, or
+     * {@code null} if there is none.
+     */
+    @CheckForNull
+    static Integer supersedingBuild(Run<?, ?> run) {
+        return supersedingBuild(keyOf(run), run.getNumber());
+    }
+
+    @CheckForNull
+    static synchronized Integer supersedingBuild(String key, int buildNumber) {
+        JobState state = JOBS.get(key);
+        if (state == null) {
+            return null;
+        }
+        int newest = Math.max(state.active.isEmpty() ? 0 : state.active.last(), state.lastPublished);
+        return newest > buildNumber ? newest : null;
+    }
+
+    private static final class JobState {
+        private final TreeSet<Integer> active = new TreeSet<>();
+        private int lastPublished;
+    }
+}
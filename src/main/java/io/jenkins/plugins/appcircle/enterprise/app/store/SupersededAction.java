@@ -0,0 +1,22 @@
+package io.jenkins.plugins.appcircle.enterprise.app.store;
+
+import hudson.model.InvisibleAction;
+
+/** Records on a build that its publish was skipped because a newer build of the same job took over. */
+public class SupersededAction extends InvisibleAction {
+    private final int supersededBy;
+    private final String stage;
+
+    public SupersededAction(int supersededBy, String stage) {
+        this.supersededBy = supersededBy;
+        this.stage = stage;
+    }
+
+    public int getSupersededBy() {
+        return supersededBy;
+    }
+
+    public String getStage() {
+        return stage;
+    }
+}
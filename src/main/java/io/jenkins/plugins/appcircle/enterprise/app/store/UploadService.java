@@ -16,6 +16,7 @@ import java.util.Arrays;
 import java.util.Comparator;
 import java.util.List;
 import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.BooleanSupplier;
 import org.apache.http.HttpEntity;
 import org.apache.http.NoHttpResponseException;
 import org.apache.http.client.methods.CloseableHttpResponse;
@@ -43,6 +44,7 @@ public class UploadService {
 
     String authToken;
     String baseUrl;
+    HttpEventRecorder recorder;
 
     @DataBoundConstructor
     public UploadService(String authToken) {
@@ -56,7 +58,26 @@ public class UploadService {
                 : apiEndpoint.trim().replaceAll("/+$", "");
     }
 
+    public UploadService(String authToken, String apiEndpoint, HttpEventRecorder recorder) {
+        this(authToken, apiEndpoint);
+        this.recorder = recorder;
+    }
+
+    private CloseableHttpClient createHttpClient() {
+        return this.recorder != null ? this.recorder.getClient() : HttpClients.createDefault();
+    }
+
     public JSONObject uploadArtifact(String appPath) throws IOException {
+        JSONObject staged = stageArtifact(appPath);
+        return commitFileUpload(staged.optString("fileId"), staged.optString("fileName"));
+    }
+
+    /**
+     * Transfers the binary to its signed upload URL without committing it.
+     *
+     * @return the {@code fileId} and {@code fileName} to pass to {@link #commitFileUpload(String, String)}
+     */
+    JSONObject stageArtifact(String appPath) throws IOException {
         File file = new File(appPath);
         String fileName = file.getName();
         long fileSize = file.length();
@@ -78,9 +99,10 @@ public class UploadService {
             uploadViaPut(uploadUrl, file);
         }
 
-        // 3) Commit the upload. createNewProfile=true lets the server match the binary to its profile by package
-        //    (adding a version to the existing profile, or creating one only if none exists).
-        return commitFileUpload(fileId, fileName);
+        JSONObject staged = new JSONObject();
+        staged.put("fileId", fileId);
+        staged.put("fileName", fileName);
+        return staged;
     }
 
     private JSONObject getUploadInformation(String fileName, long fileSize) throws IOException {
@@ -91,7 +113,7 @@ public class UploadService {
                     .addParameter("fileSize", String.valueOf(fileSize))
                     .build();
 
-            try (CloseableHttpClient httpClient = HttpClients.createDefault()) {
+            try (CloseableHttpClient httpClient = createHttpClient()) {
                 HttpGet request = new HttpGet(uri);
                 request.setHeader("Authorization", "Bearer " + this.authToken);
                 request.setHeader("Accept", "application/json");
@@ -115,11 +137,12 @@ public class UploadService {
         long delayMillis = 1000;
 
         for (int attempt = 0; attempt <= MAX_RETRIES; attempt++) {
-            try (CloseableHttpClient httpClient = HttpClients.createDefault()) {
+            try (CloseableHttpClient httpClient = createHttpClient()) {
                 HttpPut request = new HttpPut(uploadUrl);
                 request.setEntity(new FileEntity(file, ContentType.APPLICATION_OCTET_STREAM));
 
-                try (CloseableHttpResponse response = httpClient.execute(request)) {
+                try (CloseableHttpResponse response =
+                        httpClient.execute(request, HttpEventRecorder.attemptContext(attempt + 1))) {
                     int status = response.getStatusLine().getStatusCode();
                     EntityUtils.consumeQuietly(response.getEntity());
                     if (status >= 200 && status < 300) {
@@ -145,7 +168,7 @@ public class UploadService {
     }
 
     private void uploadViaPost(String uploadUrl, File file, @Nullable JSONObject configuration) throws IOException {
-        try (CloseableHttpClient httpClient = HttpClients.createDefault()) {
+        try (CloseableHttpClient httpClient = createHttpClient()) {
             HttpPost request = new HttpPost(uploadUrl);
 
             MultipartEntityBuilder builder = MultipartEntityBuilder.create();
@@ -169,7 +192,9 @@ public class UploadService {
         }
     }
 
-    private JSONObject commitFileUpload(String fileId, String fileName) throws IOException {
+    // Commits the upload. createNewProfile=true lets the server match the binary to its profile by package
+    // (adding a version to the existing profile, or creating one only if none exists).
+    JSONObject commitFileUpload(String fileId, String fileName) throws IOException {
         try {
             URI uri = new URIBuilder(String.format("%s/store/v1/profiles/app-versions", this.baseUrl))
                     .addParameter("action", "commitFileUpload")
@@ -180,7 +205,7 @@ public class UploadService {
             payload.put("fileId", fileId);
             payload.put("fileName", fileName);
 
-            try (CloseableHttpClient httpClient = HttpClients.createDefault()) {
+            try (CloseableHttpClient httpClient = createHttpClient()) {
                 HttpPost request = new HttpPost(uri);
                 request.setHeader("Authorization", "Bearer " + this.authToken);
                 request.setHeader("Accept", "application/json");
@@ -216,7 +241,7 @@ public class UploadService {
             throws IOException {
         String url = String.format(
                 "%s/store/v2/profiles/%s/app-versions/%s?action=publish", this.baseUrl, entProfileId, entVersionId);
-        CloseableHttpClient httpClient = HttpClients.createDefault();
+        CloseableHttpClient httpClient = createHttpClient();
 
         HttpPatch httpPatch = new HttpPatch(url);
         httpPatch.setHeader("Authorization", "Bearer " + this.authToken);
@@ -243,7 +268,7 @@ public class UploadService {
 
     public AppVersions[] getAppVersions(String entProfileId) throws IOException {
         String url = String.format("%s/store/v2/profiles/%s/app-versions", this.baseUrl, entProfileId);
-        CloseableHttpClient httpClient = HttpClients.createDefault();
+        CloseableHttpClient httpClient = createHttpClient();
         HttpGet getRequest = new HttpGet(url);
         getRequest.setHeader("Authorization", "Bearer " + this.authToken);
         getRequest.setHeader("Accept", "application/json");
@@ -280,10 +305,30 @@ public class UploadService {
     }
 
     Boolean checkUploadStatus(String taskId) throws Exception {
+        return checkUploadStatus(taskId, () -> false);
+    }
+
+    /**
+     * Polls the upload task until it completes. Returns {@code false} without waiting further once {@code cancelled}
+     * reports true, e.g. because a newer build has taken over publishing.
+     */
+    Boolean checkUploadStatus(String taskId, BooleanSupplier cancelled) throws Exception {
+        return checkUploadStatus(taskId, cancelled, Long.MAX_VALUE);
+    }
+
+    /** Like {@link #checkUploadStatus(String, BooleanSupplier)}, but fails once {@code deadlineMillis} has passed. */
+    Boolean checkUploadStatus(String taskId, BooleanSupplier cancelled, long deadlineMillis) throws Exception {
+        if (cancelled.getAsBoolean()) {
+            return false;
+        }
+        if (System.currentTimeMillis() > deadlineMillis) {
+            throw new IOException(taskId + " id upload request did not finish processing in time");
+        }
+
         String url = String.format("%s/task/v1/tasks/%s", this.baseUrl, taskId);
         String result = "";
 
-        try (CloseableHttpClient httpClient = HttpClients.createDefault()) {
+        try (CloseableHttpClient httpClient = createHttpClient()) {
             HttpGet request = new HttpGet(url);
             request.setHeader("Authorization", "Bearer " + this.authToken);
 
@@ -303,7 +348,7 @@ public class UploadService {
                     throw new Exception(taskId + " id upload request failed with status " + stateName);
                 } else if (stateValue == 1) {
                     Thread.sleep(2000);
-                    return checkUploadStatus(taskId);
+                    return checkUploadStatus(taskId, cancelled, deadlineMillis);
                 } else if (stateValue == 3) {
                     return true;
                 }
@@ -317,7 +362,7 @@ public class UploadService {
 
     public EnterpriseProfile[] getEntProfiles() throws IOException {
         String url = String.format("%s/store/v2/profiles", this.baseUrl);
-        CloseableHttpClient httpClient = HttpClients.createDefault();
+        CloseableHttpClient httpClient = createHttpClient();
         HttpGet getRequest = new HttpGet(url);
         getRequest.setHeader("Authorization", "Bearer " + this.authToken);
         getRequest.setHeader("Accept", "application/json");
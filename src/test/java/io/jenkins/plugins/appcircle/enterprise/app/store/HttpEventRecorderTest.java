@@ -0,0 +1,46 @@
+package io.jenkins.plugins.appcircle.enterprise.app.store;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.List;
+import org.junit.Test;
+
+public class HttpEventRecorderTest {
+    @Test
+    public void keepsNewestEventsInOrderAfterWrapAround() {
+        HttpEventRecorder recorder = new HttpEventRecorder(3);
+        for (int i = 1; i <= 5; i++) {
+            recorder.record(event("https://api.appcircle.io/" + i));
+        }
+
+        List<HttpEvent> events = recorder.getEvents();
+        assertEquals(3, events.size());
+        assertEquals("https://api.appcircle.io/3", events.get(0).getUrl());
+        assertEquals("https://api.appcircle.io/4", events.get(1).getUrl());
+        assertEquals("https://api.appcircle.io/5", events.get(2).getUrl());
+        assertEquals(2, recorder.getDroppedCount());
+    }
+
+    @Test
+    public void dropsNothingBeforeWrapAround() {
+        HttpEventRecorder recorder = new HttpEventRecorder(3);
+        recorder.record(event("https://api.appcircle.io/1"));
+
+        assertEquals(1, recorder.getEvents().size());
+        assertEquals(0, recorder.getDroppedCount());
+    }
+
+    @Test
+    public void redactMasksQueryValues() {
+        assertEquals(
+                "https://storage.example.com/upload?X-Signature=***&flag&X-Expires=***",
+                HttpEventRecorder.redact("https://storage.example.com/upload?X-Signature=abc&flag&X-Expires=60"));
+        assertEquals(
+                "https://api.appcircle.io/store/v2/profiles",
+                HttpEventRecorder.redact("https://api.appcircle.io/store/v2/profiles"));
+    }
+
+    private static HttpEvent event(String url) {
+        return new HttpEvent(0, "GET", url, 200, 0, 0, 1, false, null);
+    }
+}
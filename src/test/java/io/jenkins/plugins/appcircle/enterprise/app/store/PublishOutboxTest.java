@@ -0,0 +1,209 @@
+package io.jenkins.plugins.appcircle.enterprise.app.store;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import hudson.FilePath;
+import hudson.model.FreeStyleBuild;
+import hudson.model.FreeStyleProject;
+import hudson.util.Secret;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import org.json.JSONObject;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.jvnet.hudson.test.JenkinsRule;
+
+public class PublishOutboxTest {
+    @Rule
+    public JenkinsRule j = new JenkinsRule();
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void retryDelayBacksOffExponentiallyUpToCap() {
+        assertEquals(TimeUnit.SECONDS.toMillis(30), PublishOutbox.retryDelayMillis(1));
+        assertEquals(TimeUnit.SECONDS.toMillis(60), PublishOutbox.retryDelayMillis(2));
+        assertEquals(TimeUnit.MINUTES.toMillis(30), PublishOutbox.retryDelayMillis(20));
+    }
+
+    @Test
+    public void publishOnlyRetryResumesAfterRestartWithoutUploadingAgain() throws Exception {
+        FreeStyleBuild build = j.buildAndAssertSuccess(j.createFreeStyleProject("resume"));
+        TestOutbox outbox = new TestOutbox();
+        outbox.service.publishFailures = 1;
+        OutboxEntry entry = enqueue(outbox, build, false);
+
+        outbox.attempt(entry);
+        assertEquals(1, outbox.service.staged);
+        assertEquals(Collections.singletonList(PublishOutbox.retryDelayMillis(1)), outbox.scheduled.subList(1, 2));
+
+        TestOutbox restored = new TestOutbox();
+        restored.resume();
+        assertEquals(1, restored.getDepth());
+        OutboxEntry loaded = restored.getEntries().get(0);
+        assertEquals("pat", loaded.getPersonalAPIToken().getPlainText());
+        assertTrue(loaded.isUploaded());
+        assertEquals("profile-1", loaded.getProfileId());
+        assertEquals("version-1", loaded.getAppVersionId());
+        assertEquals(1, loaded.getAttempts());
+        assertEquals(Collections.singletonList(0L), restored.scheduled);
+
+        restored.attempt(loaded);
+        assertEquals(0, restored.service.staged);
+        assertEquals(Collections.singletonList("profile-1/version-1"), restored.service.published);
+        assertEquals(0, restored.getDepth());
+        assertEquals(1, restored.getDeliveredCount());
+        assertTrue(build.getAction(OutboxResultAction.class).isPublished());
+    }
+
+    @Test
+    public void givesUpAfterMaxAttempts() throws Exception {
+        FreeStyleBuild build = j.buildAndAssertSuccess(j.createFreeStyleProject("give-up"));
+        TestOutbox outbox = new TestOutbox();
+        outbox.service.stageFailure = true;
+        OutboxEntry entry = enqueue(outbox, build, false);
+
+        for (int i = 1; i <= PublishOutbox.MAX_ATTEMPTS; i++) {
+            outbox.attempt(entry);
+            if (i < PublishOutbox.MAX_ATTEMPTS) {
+                assertEquals(PublishOutbox.retryDelayMillis(i), (long) outbox.scheduled.get(i));
+            }
+        }
+
+        assertEquals(PublishOutbox.MAX_ATTEMPTS, outbox.scheduled.size());
+        assertEquals(0, outbox.getDepth());
+        assertEquals(1, outbox.getFailedCount());
+        OutboxResultAction result = build.getAction(OutboxResultAction.class);
+        assertFalse(result.isPublished());
+        assertEquals(PublishOutbox.MAX_ATTEMPTS, result.getAttempts());
+    }
+
+    @Test
+    public void attemptInterruptedByShutdownIsNotCounted() throws Exception {
+        FreeStyleBuild build = j.buildAndAssertSuccess(j.createFreeStyleProject("interrupted"));
+        TestOutbox outbox = new TestOutbox();
+        outbox.service.interruptPoll = true;
+        OutboxEntry entry = enqueue(outbox, build, false);
+
+        outbox.attempt(entry);
+
+        assertEquals(0, entry.getAttempts());
+        assertEquals(1, outbox.getDepth());
+        assertEquals(Collections.singletonList(0L), outbox.scheduled);
+    }
+
+    @Test
+    public void queuedOlderBuildIsSupersededBeforeUpload() throws Exception {
+        FreeStyleProject project = j.createFreeStyleProject("supersede");
+        FreeStyleBuild older = j.buildAndAssertSuccess(project);
+        FreeStyleBuild newer = j.buildAndAssertSuccess(project);
+        TestOutbox outbox = new TestOutbox();
+        OutboxEntry olderEntry = enqueue(outbox, older, true);
+        OutboxEntry newerEntry = enqueue(outbox, newer, true);
+
+        outbox.attempt(olderEntry);
+
+        assertEquals(0, outbox.service.staged);
+        assertEquals(Collections.singletonList(newerEntry), outbox.getEntries());
+        assertEquals(1, outbox.getSupersededCount());
+        SupersededAction superseded = older.getAction(SupersededAction.class);
+        assertNotNull(superseded);
+        assertEquals(newer.getNumber(), superseded.getSupersededBy());
+        assertEquals("upload", superseded.getStage());
+
+        outbox.attempt(newerEntry);
+        assertEquals(1, outbox.service.staged);
+    }
+
+    private OutboxEntry enqueue(TestOutbox outbox, FreeStyleBuild build, boolean supersede) throws Exception {
+        return outbox.enqueue(
+                build,
+                new FilePath(tmp.newFile("app-" + build.getNumber() + ".apk")),
+                "summary",
+                "notes",
+                "1",
+                Secret.fromString("pat"),
+                null,
+                null,
+                supersede,
+                false);
+    }
+
+    /** Outbox that records scheduling instead of running workers and delivers through a stub service. */
+    static class TestOutbox extends PublishOutbox {
+        final transient List<Long> scheduled = new ArrayList<>();
+        final transient StubUploadService service = new StubUploadService();
+
+        @Override
+        synchronized void schedule(OutboxEntry entry, long delayMillis) {
+            scheduled.add(delayMillis);
+        }
+
+        @Override
+        UploadService openSession(OutboxEntry entry, HttpEventRecorder recorder) {
+            return service;
+        }
+    }
+
+    static class StubUploadService extends UploadService {
+        int staged;
+        int committed;
+        int publishFailures;
+        boolean stageFailure;
+        boolean interruptPoll;
+        final List<String> published = new ArrayList<>();
+
+        StubUploadService() {
+            super("token", null);
+        }
+
+        @Override
+        JSONObject stageArtifact(String appPath) throws IOException {
+            if (stageFailure) {
+                throw new IOException("File upload failed with status code: 503");
+            }
+            staged++;
+            return new JSONObject().put("fileId", "file").put("fileName", "app.apk");
+        }
+
+        @Override
+        JSONObject commitFileUpload(String fileId, String fileName) {
+            committed++;
+            return new JSONObject().put("taskId", "task-" + committed);
+        }
+
+        @Override
+        Boolean checkUploadStatus(String taskId, BooleanSupplier cancelled, long deadlineMillis) throws Exception {
+            if (interruptPoll) {
+                throw new InterruptedException();
+            }
+            return true;
+        }
+
+        @Override
+        public String getProfileId() {
+            return "profile-1";
+        }
+
+        @Override
+        public String getLatestAppVersionId(String profileId) {
+            return "version-" + committed;
+        }
+
+        @Override
+        public Boolean publishEnterpriseAppVersion(
+                String entProfileId, String entVersionId, String summary, String releaseNotes, String publishType) {
+            published.add(entProfileId + "/" + entVersionId);
+            return publishFailures-- <= 0;
+        }
+    }
+}
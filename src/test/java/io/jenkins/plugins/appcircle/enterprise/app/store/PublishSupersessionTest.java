@@ -0,0 +1,53 @@
+package io.jenkins.plugins.appcircle.enterprise.app.store;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+
+public class PublishSupersessionTest {
+    @Test
+    public void newerInFlightBuildSupersedesOlder() {
+        PublishSupersession.register("newer-in-flight", 1);
+        PublishSupersession.register("newer-in-flight", 2);
+
+        assertEquals(Integer.valueOf(2), PublishSupersession.supersedingBuild("newer-in-flight", 1));
+        assertNull(PublishSupersession.supersedingBuild("newer-in-flight", 2));
+    }
+
+    @Test
+    public void olderBuildDoesNotSupersedeNewer() {
+        PublishSupersession.register("older-in-flight", 5);
+        PublishSupersession.register("older-in-flight", 3);
+
+        assertNull(PublishSupersession.supersedingBuild("older-in-flight", 5));
+        assertEquals(Integer.valueOf(5), PublishSupersession.supersedingBuild("older-in-flight", 3));
+    }
+
+    @Test
+    public void publishedBuildKeepsSupersedingAfterRelease() {
+        PublishSupersession.register("published", 1);
+        PublishSupersession.register("published", 2);
+        PublishSupersession.release("published", 2, true);
+
+        assertEquals(Integer.valueOf(2), PublishSupersession.supersedingBuild("published", 1));
+    }
+
+    @Test
+    public void publishedBuildSupersedesOlderBuildThatStartsLater() {
+        PublishSupersession.register("late-older", 2);
+        PublishSupersession.release("late-older", 2, true);
+
+        assertEquals(Integer.valueOf(2), PublishSupersession.supersedingBuild("late-older", 1));
+        assertNull(PublishSupersession.supersedingBuild("late-older", 3));
+    }
+
+    @Test
+    public void failedNewerBuildStopsSuperseding() {
+        PublishSupersession.register("failed", 1);
+        PublishSupersession.register("failed", 2);
+        PublishSupersession.release("failed", 2, false);
+
+        assertNull(PublishSupersession.supersedingBuild("failed", 1));
+    }
+}